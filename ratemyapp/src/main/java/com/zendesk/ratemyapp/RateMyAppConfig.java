@@ -1,13 +1,19 @@
 package com.zendesk.ratemyapp;
 
 import android.content.Context;
+import android.content.SharedPreferences;
 import android.support.v4.app.DialogFragment;
 import android.support.v7.app.AppCompatActivity;
 import android.util.Log;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Object representing the configuration to use for a {@link RateMyAppDialog}. Specifically, this
@@ -26,6 +32,14 @@ import java.util.Locale;
  * the existence of the {@code appVersion} in {@link android.content.SharedPreferences}, and doesn't
  * allow the dialog to show if the String is found. The {@code appVersion} is stored when the user clicks
  * any button in the {@link RateMyAppDialog}.
+ *
+ * Results of {@link RateMyAppDependentRule}s are cached, and only re-evaluated when
+ * {@link RateMyAppConfig#notifyStateChanged(String)} is called with a key they depend on. The
+ * aggregate decision is kept up to date as they change, so only plain {@link RateMyAppRule}s are
+ * polled when the dialog is asked to show. Each config listens for changes to the stored
+ * {@code appVersion} itself, so storing it through any config or listener invalidates every
+ * config which uses it. Clearing the preferences doesn't notify listeners, so while the
+ * {@code appVersion} rule denies showing, it is re-checked on every call to {@code show}.
  */
 public class RateMyAppConfig {
 
@@ -37,24 +51,128 @@ public class RateMyAppConfig {
 
     private String appVersion;
 
+    private final List<RateMyAppRule> volatileRules = new ArrayList<>();
+
+    private final List<RateMyAppDependentRule> dependentRules = new ArrayList<>();
+
+    private final Map<String, List<RateMyAppDependentRule>> dependencyIndex = new HashMap<>();
+
+    private final Set<RateMyAppDependentRule> deniedRules =
+            Collections.newSetFromMap(new IdentityHashMap<RateMyAppDependentRule, Boolean>());
+
+    private boolean dependentRulesEvaluated;
+
+    private RateMyAppDependentRule versionRule;
+
+    /**
+     * {@link SharedPreferences} only hold weak references to their listeners, so this is kept for
+     * the lifetime of the config.
+     */
+    private final SharedPreferences.OnSharedPreferenceChangeListener versionListener =
+            new SharedPreferences.OnSharedPreferenceChangeListener() {
+                @Override
+                public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+                    if (RateMyAppDialog.PREFS_DONT_ASK_VERSION_KEY.equals(key)) {
+                        notifyStateChanged(RateMyAppDependentRule.STATE_APP_VERSION);
+                    }
+                }
+            };
+
     private RateMyAppConfig(Builder builder) {
         this.storeUrl = builder.storeUrl;
-        this.rules = builder.rules;
+        this.rules = new ArrayList<>(builder.rules);
         this.appVersion = builder.appVersion;
+        this.versionRule = builder.versionRule;
+
+        if (builder.versionContext != null) {
+            builder.versionContext.getSharedPreferences(RateMyAppDialog.PREFS_FILE, Context.MODE_PRIVATE)
+                    .registerOnSharedPreferenceChangeListener(versionListener);
+        }
+
+        for (RateMyAppRule rule : rules) {
+            if (rule instanceof RateMyAppDependentRule) {
+                indexRule((RateMyAppDependentRule) rule);
+            } else {
+                volatileRules.add(rule);
+            }
+        }
+    }
+
+    private void indexRule(RateMyAppDependentRule rule) {
+        dependentRules.add(rule);
+
+        String[] keys = rule.dependsOn();
+        if (keys == null) {
+            return;
+        }
+        for (String key : keys) {
+            List<RateMyAppDependentRule> dependents = dependencyIndex.get(key);
+            if (dependents == null) {
+                dependents = new ArrayList<>();
+                dependencyIndex.put(key, dependents);
+            }
+            if (!dependents.contains(rule)) {
+                dependents.add(rule);
+            }
+        }
+    }
+
+    /**
+     * Notifies this config that a piece of state has changed, re-evaluating only the
+     * {@link RateMyAppDependentRule}s which declared a dependency on {@code key}.
+     *
+     * Changes to the version name stored by {@link DialogActionListener} are picked up
+     * automatically. Clients should call this whenever state read by their own
+     * {@link RateMyAppDependentRule}s changes, for example after incrementing a launch counter.
+     *
+     * @param key the key of the state which changed
+     */
+    public synchronized void notifyStateChanged(String key) {
+        if (!dependentRulesEvaluated) {
+            // Nothing cached yet, every rule will be evaluated on the first call to canShow().
+            return;
+        }
+
+        List<RateMyAppDependentRule> dependents = dependencyIndex.get(key);
+        if (dependents == null) {
+            return;
+        }
+        for (RateMyAppDependentRule rule : dependents) {
+            evaluate(rule);
+        }
     }
 
-    boolean canShow() {
-        boolean canShow = true;
-        for (RateMyAppRule rule: rules) {
-            boolean rulePermits = rule.permitDisplay();
-            if (!rulePermits) {
+    synchronized boolean canShow() {
+        if (!dependentRulesEvaluated) {
+            for (RateMyAppDependentRule rule : dependentRules) {
+                evaluate(rule);
+            }
+            dependentRulesEvaluated = true;
+        } else if (versionRule != null && deniedRules.contains(versionRule)) {
+            // The stored version may have been cleared, which isn't notified before API 30.
+            evaluate(versionRule);
+        }
+
+        boolean canShow = deniedRules.isEmpty();
+
+        for (RateMyAppRule rule : volatileRules) {
+            if (!rule.permitDisplay()) {
                 Log.d(LOG_TAG, rule.denialMessage());
+                canShow = false;
             }
-            canShow &= rule.permitDisplay();
         }
         return canShow;
     }
 
+    private void evaluate(RateMyAppDependentRule rule) {
+        if (rule.permitDisplay()) {
+            deniedRules.remove(rule);
+        } else {
+            Log.d(LOG_TAG, rule.denialMessage());
+            deniedRules.add(rule);
+        }
+    }
+
     String getStoreUrl() {
         return storeUrl;
     }
@@ -86,6 +204,10 @@ public class RateMyAppConfig {
 
         private String appVersion;
 
+        private Context versionContext;
+
+        private RateMyAppDependentRule versionRule;
+
         private List<RateMyAppRule> rules = new ArrayList<>();
 
         /**
@@ -133,8 +255,14 @@ public class RateMyAppConfig {
          */
         public Builder withVersion(final Context context, final String version) {
             this.appVersion = version;
+            this.versionContext = context;
+
+            this.versionRule = new RateMyAppDependentRule() {
+                @Override
+                public String[] dependsOn() {
+                    return new String[] { STATE_APP_VERSION };
+                }
 
-            this.rules.add(new RateMyAppRule() {
                 @Override
                 public boolean permitDisplay() {
                     String storedVersion = context.getSharedPreferences(RateMyAppDialog.PREFS_FILE,
@@ -156,7 +284,8 @@ public class RateMyAppConfig {
                     return String.format(Locale.US, "Stored version is %s, current version is %s, returning false.",
                             storedVersion, appVersion);
                 }
-            });
+            };
+            this.rules.add(versionRule);
 
             return this;
         }
@@ -166,6 +295,10 @@ public class RateMyAppConfig {
          * to show the dialog in
          * {@link RateMyAppDialog#show(AppCompatActivity, RateMyAppConfig, DialogActionListener)}.
          *
+         * If the rule is a {@link RateMyAppDependentRule}, its result is cached and only
+         * re-evaluated when {@link RateMyAppConfig#notifyStateChanged(String)} is called with one of
+         * the keys it depends on.
+         *
          * Any rules added are ignored by
          * {@link RateMyAppDialog#showAlways(AppCompatActivity, RateMyAppConfig, DialogActionListener)}.
          *
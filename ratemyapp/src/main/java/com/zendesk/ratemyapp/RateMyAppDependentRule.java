@@ -0,0 +1,35 @@
+package com.zendesk.ratemyapp;
+
+import android.support.v7.app.AppCompatActivity;
+
+/**
+ * A {@link RateMyAppRule} which declares the pieces of state its result depends on.
+ *
+ * The result of {@link #permitDisplay()} is cached by {@link RateMyAppConfig}, and is only
+ * re-evaluated when {@link RateMyAppConfig#notifyStateChanged(String)} is called with one of the
+ * keys returned by {@link #dependsOn()}. This keeps
+ * {@link RateMyAppDialog#show(AppCompatActivity, RateMyAppConfig, DialogActionListener)} from
+ * re-reading storage for rules whose inputs haven't changed.
+ *
+ * Rules which only implement {@link RateMyAppRule} are treated as volatile and are still
+ * evaluated on every call to
+ * {@link RateMyAppDialog#show(AppCompatActivity, RateMyAppConfig, DialogActionListener)}.
+ */
+public interface RateMyAppDependentRule extends RateMyAppRule {
+
+    /**
+     * The key notified whenever the "Don't ask again" version name is stored by any
+     * {@link DialogActionListener}. The rule added by {@link RateMyAppConfig.Builder#withVersion}
+     * depends on it.
+     */
+    String STATE_APP_VERSION = RateMyAppDialog.PREFS_DONT_ASK_VERSION_KEY;
+
+    /**
+     * Returns the keys of the state this rule depends on, for example a version name, a launch
+     * counter or a journal entry. The keys are read once, when the {@link RateMyAppConfig} is
+     * built.
+     *
+     * @return the keys which, when notified as changed, cause this rule to be re-evaluated
+     */
+    String[] dependsOn();
+}
@@ -20,7 +20,9 @@ public interface RateMyAppRule {
     /**
      * Returns an explanation for why {@code permitDisplay()}returned false. It is invoked by
      * {@link RateMyAppDialog#show(AppCompatActivity, RateMyAppConfig, DialogActionListener)} on any
-     * rules which return false.
+     * rules which return false. For a {@link RateMyAppDependentRule}, it is instead invoked
+     * whenever the rule is evaluated and returns false, which happens when one of the keys it
+     * depends on changes rather than on every call to {@code show}.
      *
      * This method makes no guarantee that {@code permitDisplay()} actually returns false. It
      * will not be called by {@link RateMyAppDialog} if the rule returns true, but a client who
@@ -0,0 +1,397 @@
+package com.zendesk.ratemyapp;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.SharedPreferences;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RateMyAppConfigTest {
+
+    private static final String STORE_URL = "https://play.google.com/store/apps/details?id=com.zendesk.android";
+
+    private FakeSharedPreferences sharedPreferences;
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        sharedPreferences = new FakeSharedPreferences();
+        context = new ContextWrapper(null) {
+            @Override
+            public SharedPreferences getSharedPreferences(String name, int mode) {
+                return sharedPreferences;
+            }
+        };
+    }
+
+    @Test
+    public void dependentRuleIsEvaluatedOnceAcrossRepeatedCanShow() {
+        CountingRule rule = new CountingRule(true, "counter");
+        RateMyAppConfig config = configWith(rule);
+
+        assertTrue(config.canShow());
+        assertTrue(config.canShow());
+        assertTrue(config.canShow());
+
+        assertEquals(1, rule.evaluations);
+    }
+
+    @Test
+    public void notifyStateChangedOnlyReEvaluatesRulesIndexedUnderKey() {
+        CountingRule counterRule = new CountingRule(true, "counter");
+        CountingRule journalRule = new CountingRule(true, "journal");
+        CountingRule bothRule = new CountingRule(true, "counter", "journal");
+        RateMyAppConfig config = configWith(counterRule, journalRule, bothRule);
+        config.canShow();
+
+        config.notifyStateChanged("counter");
+
+        assertEquals(2, counterRule.evaluations);
+        assertEquals(1, journalRule.evaluations);
+        assertEquals(2, bothRule.evaluations);
+    }
+
+    @Test
+    public void notifyStateChangedForUnknownKeyEvaluatesNothing() {
+        CountingRule rule = new CountingRule(true, "counter");
+        RateMyAppConfig config = configWith(rule);
+        config.canShow();
+
+        config.notifyStateChanged("journal");
+
+        assertEquals(1, rule.evaluations);
+    }
+
+    @Test
+    public void notifyStateChangedBeforeFirstCanShowIsNoOp() {
+        CountingRule rule = new CountingRule(false, "counter");
+        RateMyAppConfig config = configWith(rule);
+
+        config.notifyStateChanged("counter");
+        assertEquals(0, rule.evaluations);
+
+        assertFalse(config.canShow());
+        assertEquals(1, rule.evaluations);
+    }
+
+    @Test
+    public void dependentRuleWithNullDependenciesIsEvaluatedOnce() {
+        CountingRule rule = new CountingRule(false, (String[]) null);
+        RateMyAppConfig config = configWith(rule);
+
+        assertFalse(config.canShow());
+        config.notifyStateChanged("counter");
+        assertFalse(config.canShow());
+
+        assertEquals(1, rule.evaluations);
+    }
+
+    @Test
+    public void plainRulesArePolledOnEveryCanShow() {
+        final int[] evaluations = new int[1];
+        RateMyAppRule rule = new RateMyAppRule() {
+            @Override
+            public boolean permitDisplay() {
+                evaluations[0]++;
+                return true;
+            }
+
+            @Override
+            public String denialMessage() {
+                return "plain";
+            }
+        };
+        RateMyAppConfig config = new RateMyAppConfig.Builder()
+                .withAndroidStoreUrl(STORE_URL)
+                .withRule(rule)
+                .build();
+
+        config.canShow();
+        config.canShow();
+        config.canShow();
+
+        assertEquals(3, evaluations[0]);
+    }
+
+    @Test
+    public void ruleMovingFromDeniedToPermittedAllowsShowing() {
+        CountingRule rule = new CountingRule(false, "counter");
+        RateMyAppConfig config = configWith(rule);
+        assertFalse(config.canShow());
+
+        rule.permit = true;
+        config.notifyStateChanged("counter");
+
+        assertTrue(config.canShow());
+    }
+
+    @Test
+    public void storedVersionIsHonouredByEveryConfigSharingIt() {
+        RateMyAppConfig first = new RateMyAppConfig.Builder()
+                .withAndroidStoreUrl(STORE_URL)
+                .withVersion(context, "1.0.0")
+                .build();
+        RateMyAppConfig second = new RateMyAppConfig.Builder()
+                .withAndroidStoreUrl(STORE_URL)
+                .withVersion(context, "1.0.0")
+                .build();
+        assertTrue(first.canShow());
+        assertTrue(second.canShow());
+
+        storeVersion("1.0.0");
+
+        assertFalse(first.canShow());
+        assertFalse(second.canShow());
+    }
+
+    @Test
+    public void clearedVersionAllowsShowingAgain() {
+        RateMyAppConfig config = new RateMyAppConfig.Builder()
+                .withAndroidStoreUrl(STORE_URL)
+                .withVersion(context, "1.0.0")
+                .build();
+        storeVersion("1.0.0");
+        assertFalse(config.canShow());
+
+        sharedPreferences.edit().clear().apply();
+
+        assertTrue(config.canShow());
+    }
+
+    @Test
+    public void rulesAddedToBuilderAfterBuildAreIgnored() {
+        RateMyAppConfig.Builder builder = new RateMyAppConfig.Builder().withAndroidStoreUrl(STORE_URL);
+        RateMyAppConfig config = builder.build();
+
+        builder.withRule(new CountingRule(false, "counter"));
+
+        assertTrue(config.canShow());
+    }
+
+    @Test
+    public void storedVersionIsReadOnceUntilItChanges() {
+        RateMyAppConfig config = new RateMyAppConfig.Builder()
+                .withAndroidStoreUrl(STORE_URL)
+                .withVersion(context, "1.0.0")
+                .build();
+
+        config.canShow();
+        int reads = sharedPreferences.reads;
+        config.canShow();
+        config.canShow();
+
+        assertEquals(reads, sharedPreferences.reads);
+    }
+
+    private RateMyAppConfig configWith(RateMyAppRule... rules) {
+        RateMyAppConfig.Builder builder = new RateMyAppConfig.Builder().withAndroidStoreUrl(STORE_URL);
+        for (RateMyAppRule rule : rules) {
+            builder.withRule(rule);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Stores the version the same way {@link DialogActionListener} does.
+     */
+    private void storeVersion(String version) {
+        sharedPreferences.edit().putString(RateMyAppDialog.PREFS_DONT_ASK_VERSION_KEY, version).apply();
+    }
+
+    private static class CountingRule implements RateMyAppDependentRule {
+
+        private final String[] keys;
+        private boolean permit;
+        private int evaluations;
+
+        CountingRule(boolean permit, String... keys) {
+            this.permit = permit;
+            this.keys = keys;
+        }
+
+        @Override
+        public String[] dependsOn() {
+            return keys;
+        }
+
+        @Override
+        public boolean permitDisplay() {
+            evaluations++;
+            return permit;
+        }
+
+        @Override
+        public String denialMessage() {
+            return "counting";
+        }
+    }
+
+    /**
+     * An in-memory {@link SharedPreferences} which notifies its listeners of changed keys on
+     * {@code apply()}, like the framework implementation does on the main thread at this SDK level.
+     */
+    private static class FakeSharedPreferences implements SharedPreferences {
+
+        private final Map<String, Object> values = new HashMap<>();
+        private final List<OnSharedPreferenceChangeListener> listeners = new ArrayList<>();
+        private int reads;
+
+        @Override
+        public Map<String, ?> getAll() {
+            reads++;
+            return new HashMap<>(values);
+        }
+
+        @Override
+        public String getString(String key, String defValue) {
+            reads++;
+            return values.containsKey(key) ? (String) values.get(key) : defValue;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Set<String> getStringSet(String key, Set<String> defValues) {
+            reads++;
+            return values.containsKey(key) ? (Set<String>) values.get(key) : defValues;
+        }
+
+        @Override
+        public int getInt(String key, int defValue) {
+            reads++;
+            return values.containsKey(key) ? (Integer) values.get(key) : defValue;
+        }
+
+        @Override
+        public long getLong(String key, long defValue) {
+            reads++;
+            return values.containsKey(key) ? (Long) values.get(key) : defValue;
+        }
+
+        @Override
+        public float getFloat(String key, float defValue) {
+            reads++;
+            return values.containsKey(key) ? (Float) values.get(key) : defValue;
+        }
+
+        @Override
+        public boolean getBoolean(String key, boolean defValue) {
+            reads++;
+            return values.containsKey(key) ? (Boolean) values.get(key) : defValue;
+        }
+
+        @Override
+        public boolean contains(String key) {
+            reads++;
+            return values.containsKey(key);
+        }
+
+        @Override
+        public Editor edit() {
+            return new FakeEditor();
+        }
+
+        @Override
+        public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+            listeners.add(listener);
+        }
+
+        @Override
+        public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+            listeners.remove(listener);
+        }
+
+        private class FakeEditor implements Editor {
+
+            private final Map<String, Object> changes = new HashMap<>();
+            private boolean clear;
+
+            @Override
+            public Editor putString(String key, String value) {
+                changes.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putStringSet(String key, Set<String> values) {
+                changes.put(key, values);
+                return this;
+            }
+
+            @Override
+            public Editor putInt(String key, int value) {
+                changes.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putLong(String key, long value) {
+                changes.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putFloat(String key, float value) {
+                changes.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putBoolean(String key, boolean value) {
+                changes.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor remove(String key) {
+                changes.put(key, null);
+                return this;
+            }
+
+            @Override
+            public Editor clear() {
+                clear = true;
+                return this;
+            }
+
+            @Override
+            public boolean commit() {
+                apply();
+                return true;
+            }
+
+            @Override
+            public void apply() {
+                if (clear) {
+                    // Like the framework before API 30, clearing doesn't notify listeners.
+                    values.clear();
+                }
+                for (Map.Entry<String, Object> change : changes.entrySet()) {
+                    if (change.getValue() == null) {
+                        values.remove(change.getKey());
+                    } else {
+                        values.put(change.getKey(), change.getValue());
+                    }
+                    notifyListeners(change.getKey());
+                }
+            }
+
+            private void notifyListeners(String key) {
+                for (OnSharedPreferenceChangeListener listener : new ArrayList<>(listeners)) {
+                    listener.onSharedPreferenceChanged(FakeSharedPreferences.this, key);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.zendesk.ratemyapp.sample;
+
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+
+/**
+ * A bare activity used by the show path performance tests to host the
+ * {@link com.zendesk.ratemyapp.RateMyAppDialog}, so that the measurements only include the cost of
+ * the library. Only built into debug variants.
+ */
+public class PerformanceHostActivity extends AppCompatActivity {
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_main);
+    }
+}
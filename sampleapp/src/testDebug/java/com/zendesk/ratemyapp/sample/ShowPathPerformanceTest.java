@@ -0,0 +1,371 @@
+package com.zendesk.ratemyapp.sample;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.SharedPreferences;
+import android.content.res.Configuration;
+import android.os.StrictMode;
+import android.support.v4.app.DialogFragment;
+import android.support.v4.app.Fragment;
+import android.support.v7.app.AppCompatActivity;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.zendesk.ratemyapp.DialogActionListener;
+import com.zendesk.ratemyapp.RateMyAppConfig;
+import com.zendesk.ratemyapp.RateMyAppDialog;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowDialog;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Drives show, rotation, click and dismiss cycles through {@link RateMyAppDialog} and
+ * {@link DialogActionListener}, and fails when the cost of a cycle on the main thread exceeds the
+ * baselines committed in {@code show_path_baselines.properties}. Every measurement, including the
+ * retained heap per cycle, is written to {@code build/reports/show_path/measurements.properties}.
+ *
+ * Retention is checked deterministically: the activities destroyed by rotation, and the dialog
+ * fragments, configs and listeners of finished cycles, must all be collectable.
+ *
+ * StrictMode disk and leak detection is enabled, and reports when the suite runs on a device, but
+ * the JVM doesn't report disk access to it. So the config also reads its preferences through a
+ * counting {@link ContextWrapper}, and showing a config which has already been evaluated must not
+ * read them again.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 25)
+public class ShowPathPerformanceTest {
+
+    private static final String BASELINES_FILE = "show_path_baselines.properties";
+    private static final File MEASUREMENTS_FILE = new File("build/reports/show_path/measurements.properties");
+    private static final String PLAY_STORE_URL = "https://play.google.com/store/apps/details?id=com.zendesk.android";
+
+    private static final int WARM_UP_CYCLES = 3;
+    private static final int MEASURED_CYCLES = 20;
+    private static final int GC_ATTEMPTS = 10;
+
+    private Properties baselines;
+
+    private final Properties measurements = new Properties();
+
+    private ActivityController<PerformanceHostActivity> controller;
+
+    private final List<WeakReference<Object>> collectables = new ArrayList<>();
+
+    private int feedbackClicks;
+
+    @Before
+    public void setUp() throws IOException {
+        baselines = loadBaselines();
+
+        StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                .detectDiskReads()
+                .detectDiskWrites()
+                .penaltyLog()
+                .build());
+        StrictMode.setVmPolicy(new StrictMode.VmPolicy.Builder()
+                .detectActivityLeaks()
+                .detectLeakedClosableObjects()
+                .penaltyLog()
+                .build());
+
+        controller = Robolectric.buildActivity(PerformanceHostActivity.class).setup();
+    }
+
+    @After
+    public void tearDown() {
+        StrictMode.setThreadPolicy(StrictMode.ThreadPolicy.LAX);
+        StrictMode.setVmPolicy(StrictMode.VmPolicy.LAX);
+    }
+
+    @Test
+    public void showPathStaysWithinBaselines() throws IOException {
+        for (int i = 0; i < WARM_UP_CYCLES; i++) {
+            runCycle(i, new CycleTimings());
+        }
+
+        CycleTimings timings = new CycleTimings();
+        long retainedBytes = 0;
+        for (int i = 0; i < MEASURED_CYCLES; i++) {
+            long heapBefore = usedHeap();
+            runCycle(WARM_UP_CYCLES + i, timings);
+            retainedBytes += usedHeap() - heapBefore;
+        }
+
+        record("retainedHeapBytesPerCycle", retainedBytes / MEASURED_CYCLES);
+        record("show.mainThreadMillis", timings.averageMillis(timings.showNanos));
+        record("rotate.mainThreadMillis", timings.averageMillis(timings.rotateNanos));
+        record("reshow.mainThreadMillis", timings.averageMillis(timings.reshowNanos));
+        record("click.mainThreadMillis", timings.averageMillis(timings.clickNanos));
+        record("dialog.viewCount", timings.maxViewCount);
+        writeMeasurements();
+
+        assertCollected();
+        assertFalse("Feedback button was never clicked", feedbackClicks == 0);
+
+        assertWithinBaseline("show.mainThreadMillis");
+        assertWithinBaseline("rotate.mainThreadMillis");
+        assertWithinBaseline("reshow.mainThreadMillis");
+        assertWithinBaseline("click.mainThreadMillis");
+        assertWithinBaseline("dialog.viewCount");
+    }
+
+    /**
+     * Shows the dialog, rotates the device, which dismisses it, shows it again and clicks one of
+     * the three buttons in turn. Then checks that the dialog was dismissed and won't be shown again
+     * for the stored version.
+     */
+    private void runCycle(int cycle, CycleTimings timings) {
+        CountingContext context = new CountingContext(controller.get().getApplicationContext());
+        RateMyAppConfig config = new RateMyAppConfig.Builder()
+                .withAndroidStoreUrl(PLAY_STORE_URL)
+                .withVersion(context, "cycle-" + cycle)
+                .build();
+        DialogActionListener actionListener = new DialogActionListener() {
+            @Override
+            public void onFeedbackButtonClicked(DialogFragment dialogFragment, RateMyAppConfig config) {
+                feedbackClicks++;
+            }
+        };
+
+        long start = System.nanoTime();
+        showDialog(config, actionListener);
+        timings.showNanos += System.nanoTime() - start;
+
+        DialogFragment dialog = findDialog();
+        assertNotNull("RateMyAppDialog was not shown in cycle " + cycle, dialog);
+        timings.maxViewCount = Math.max(timings.maxViewCount, countViews(dialog.getView()));
+        collectables.add(new WeakReference<Object>(dialog));
+
+        start = System.nanoTime();
+        rotate();
+        timings.rotateNanos += System.nanoTime() - start;
+
+        // RateMyAppDialog#onDetach dismisses the dialog, so it doesn't survive rotation.
+        assertNull("RateMyAppDialog survived rotation in cycle " + cycle, findDialog());
+
+        int reads = context.sharedPreferencesReads;
+        start = System.nanoTime();
+        showDialog(config, actionListener);
+        timings.reshowNanos += System.nanoTime() - start;
+        assertEquals("Showing an evaluated config read its preferences",
+                reads, context.sharedPreferencesReads);
+
+        dialog = findDialog();
+        assertNotNull("RateMyAppDialog was not shown after rotation in cycle " + cycle, dialog);
+        assertNotNull(dialog.getView());
+        collectables.add(new WeakReference<Object>(dialog));
+
+        List<View> buttons = findButtons(dialog.getView());
+        assertEquals(3, buttons.size());
+
+        start = System.nanoTime();
+        buttons.get(cycle % buttons.size()).performClick();
+        idle();
+        timings.clickNanos += System.nanoTime() - start;
+        timings.cycles++;
+
+        assertNull("RateMyAppDialog was not dismissed in cycle " + cycle, findDialog());
+
+        showDialog(config, actionListener);
+        assertNull("RateMyAppDialog was shown again for a stored version", findDialog());
+
+        collectables.add(new WeakReference<Object>(config));
+        collectables.add(new WeakReference<Object>(actionListener));
+    }
+
+    private void showDialog(RateMyAppConfig config, DialogActionListener actionListener) {
+        RateMyAppDialog.show(controller.get(), config, actionListener);
+        idle();
+    }
+
+    private DialogFragment findDialog() {
+        Fragment fragment = controller.get().getSupportFragmentManager()
+                .findFragmentByTag(RateMyAppDialog.RMA_DIALOG_TAG);
+        return fragment != null && fragment.isAdded() ? (DialogFragment) fragment : null;
+    }
+
+    private void rotate() {
+        AppCompatActivity activity = controller.get();
+        Configuration configuration = new Configuration(activity.getResources().getConfiguration());
+        configuration.orientation = configuration.orientation == Configuration.ORIENTATION_LANDSCAPE
+                ? Configuration.ORIENTATION_PORTRAIT
+                : Configuration.ORIENTATION_LANDSCAPE;
+
+        controller.configurationChange(configuration);
+        idle();
+
+        if (controller.get() != activity) {
+            collectables.add(new WeakReference<Object>(activity));
+        }
+    }
+
+    private void idle() {
+        controller.get().getSupportFragmentManager().executePendingTransactions();
+        ShadowLooper.idleMainLooper();
+    }
+
+    /**
+     * Robolectric keeps every shown {@link android.app.Dialog} in ShadowDialog until the test is
+     * reset, and each dialog references its fragment and activity, so that tracking is cleared first.
+     */
+    private void assertCollected() {
+        ShadowDialog.reset();
+
+        for (int i = 0; i < GC_ATTEMPTS && anyReachable(); i++) {
+            System.gc();
+            System.runFinalization();
+        }
+        for (WeakReference<Object> reference : collectables) {
+            if (reference.get() != null) {
+                fail("Still reachable after its cycle finished: " + reference.get());
+            }
+        }
+    }
+
+    private boolean anyReachable() {
+        for (WeakReference<Object> reference : collectables) {
+            if (reference.get() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<View> findButtons(View root) {
+        List<View> buttons = new ArrayList<>();
+        if (root instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) root;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                buttons.addAll(findButtons(group.getChildAt(i)));
+            }
+        } else if (root != null && root.hasOnClickListeners()) {
+            buttons.add(root);
+        }
+        return buttons;
+    }
+
+    private static int countViews(View root) {
+        if (root == null) {
+            return 0;
+        }
+        int count = 1;
+        if (root instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) root;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                count += countViews(group.getChildAt(i));
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Used heap after garbage collection. This is only recorded, not gated, as it's affected by
+     * whatever Robolectric loads lazily during the run.
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            System.runFinalization();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private void record(String key, long value) {
+        measurements.setProperty(key, String.valueOf(value));
+    }
+
+    private void writeMeasurements() throws IOException {
+        File directory = MEASUREMENTS_FILE.getParentFile();
+        assertTrue("Couldn't create " + directory, directory.isDirectory() || directory.mkdirs());
+
+        OutputStream outputStream = new FileOutputStream(MEASUREMENTS_FILE);
+        try {
+            measurements.store(outputStream, "Measured by " + getClass().getSimpleName());
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    private void assertWithinBaseline(String key) {
+        String baseline = baselines.getProperty(key);
+        assertNotNull("No baseline committed for " + key, baseline);
+
+        long limit = Long.parseLong(baseline.trim());
+        long actual = Long.parseLong(measurements.getProperty(key));
+        assertFalse(String.format(Locale.US, "%s is %d, baseline is %d", key, actual, limit),
+                actual > limit);
+    }
+
+    private Properties loadBaselines() throws IOException {
+        InputStream inputStream = getClass().getClassLoader().getResourceAsStream(BASELINES_FILE);
+        assertNotNull("Missing " + BASELINES_FILE, inputStream);
+
+        Properties properties = new Properties();
+        try {
+            properties.load(inputStream);
+        } finally {
+            inputStream.close();
+        }
+        return properties;
+    }
+
+    private static class CycleTimings {
+        int cycles;
+        long showNanos;
+        long rotateNanos;
+        long reshowNanos;
+        long clickNanos;
+        long maxViewCount;
+
+        long averageMillis(long totalNanos) {
+            return cycles == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalNanos / cycles);
+        }
+    }
+
+    /**
+     * Counts calls to {@link #getSharedPreferences(String, int)}, which may hit the disk.
+     */
+    private static class CountingContext extends ContextWrapper {
+
+        int sharedPreferencesReads;
+
+        CountingContext(Context base) {
+            super(base);
+        }
+
+        @Override
+        public SharedPreferences getSharedPreferences(String name, int mode) {
+            sharedPreferencesReads++;
+            return super.getSharedPreferences(name, mode);
+        }
+    }
+}
@@ -18,10 +18,18 @@ buildAll() {
   exitOnFailedBuild
 }
 
+testShowPath() {
+  ./gradlew :sampleapp:testDebugUnitTest
+  exitOnFailedBuild
+}
+
 # Build types
 pullRequestBuild() {
     boxOut "Build All Sample Apps"
     buildAll
+
+    boxOut "Show Path Performance Tests"
+    testShowPath
 }
 
 # do the thing